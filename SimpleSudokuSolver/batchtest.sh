@@ -0,0 +1,51 @@
+#!/bin/bash
+# Checks the batch mode: a puzzle whose givens conflict is written as FAIL
+# without stopping the run, a finished run resumes to nothing, and a changed
+# input or damaged checkpoint makes the run fail with a non-zero exit.
+#
+# Usage: ./batchtest.sh
+set -e
+cd "$(dirname "$0")"
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+javac -d "$WORK/classes" src/SimpleSudokuSolver.java
+solver () {
+    java -cp "$WORK/classes" SimpleSudokuSolver "$@"
+}
+fail () {
+    echo "FAILED: $1"
+    exit 1
+}
+
+# Two 1s in the first row, then a sample puzzle that has a solution
+{
+    echo "1 x x x x 1 x x x"
+    for i in 1 2 3 4 5 6 7 8; do
+        echo "x x x x x x x x x"
+    done
+    head -9 puzzles/sample.txt
+} > "$WORK/input.txt"
+
+solver --batch "$WORK/input.txt" "$WORK/output.txt" > /dev/null || fail "batch run exited non-zero"
+[ "$(sed -n 1p "$WORK/output.txt")" = "FAIL" ] || fail "conflicting puzzle was not written as FAIL"
+[ "$(sed -n 2p "$WORK/output.txt")" = \
+  "925684371147293856368157924632945187481376592759821463294718635813562749576439218" ] \
+    || fail "puzzle after the conflicting one was not solved"
+[ "$(wc -l < "$WORK/output.txt")" -eq 2 ] || fail "expected two lines of output"
+
+solver --batch "$WORK/input.txt" "$WORK/output.txt" > /dev/null || fail "resumed run exited non-zero"
+[ "$(wc -l < "$WORK/output.txt")" -eq 2 ] || fail "resumed run repeated output"
+
+echo "x" >> "$WORK/input.txt"
+if solver --batch "$WORK/input.txt" "$WORK/output.txt" 2> /dev/null; then
+    fail "run resumed against a changed input"
+fi
+
+head -c 10 "$WORK/output.txt.ckpt" > "$WORK/short.ckpt"
+if solver --batch "$WORK/input.txt" "$WORK/output.txt" "$WORK/short.ckpt" 2> "$WORK/err.txt"; then
+    fail "run resumed from a truncated checkpoint"
+fi
+grep -q "not a valid checkpoint" "$WORK/err.txt" || fail "truncated checkpoint was not reported"
+
+echo "batch tests passed"
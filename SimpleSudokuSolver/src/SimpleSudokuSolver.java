@@ -1,9 +1,22 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Scanner;
 import java.util.Set;
 
 /**
@@ -12,18 +25,90 @@ import java.util.Set;
  * @author jtnguye3
  */
 public class SimpleSudokuSolver {
+    /** Batch output line for a puzzle with no solution */
+    private static final byte[] FAIL = { 'F', 'A', 'I', 'L', '\n' };
+
+    /** Puzzles solved by --warmup, with . for an empty space */
+    private static final String[] WARMUP_PUZZLES = {
+            "9.56.43..147...8.....1.79.4.3.9.518.4..3.....75..21.....4...6358.1562.........9.18",
+            "..53.....8......2..7..1.5..4....53...1..7...6..32...8..6.5....9..4....3......97..",
+            "52...6.........7.13...........4..8..6......5...........418.........3..2...87.....",
+            "8..........36......7..9.2...5...7.......457.....1...3...1....68..85...1..9....4.." };
+
+    /** Printed when the arguments are not understood */
+    private static final String USAGE = "Usage: [--warmup <rounds>] [--time] <file> | --lab <files...> | "
+            + "--batch <input> <output> [checkpoint]";
 
     /**
      * Main method to run program. Reads board, solves, and prints completed
      * puzzle
      *
      * @param args
-     *            name of input file
+     *            name of input file, --lab followed by corpus files, or
+     *            --batch followed by input, output, and optional checkpoint
+     *            files. --warmup followed by a number of rounds may come
+     *            first to warm up the solver before a long run. --time before
+     *            the input file prints the time from JVM start to the
+     *            solution.
      */
     public static void main ( final String[] args ) {
-        final Board originalBoard = readFile( args[0] );
+        String[] rest = args;
+        boolean warmedUp = false;
+        if ( rest.length > 0 && "--warmup".equals( rest[0] ) ) {
+            int rounds = -1;
+            if ( rest.length > 2 ) {
+                try {
+                    rounds = Integer.parseInt( rest[1] );
+                }
+                catch ( final NumberFormatException e ) {
+                    rounds = -1;
+                }
+            }
+            if ( rounds < 0 ) {
+                System.err.println( USAGE );
+                System.exit( 1 );
+            }
+            warmup( rounds );
+            warmedUp = true;
+            rest = Arrays.copyOfRange( rest, 2, rest.length );
+        }
+        if ( rest.length == 0 ) {
+            System.err.println( USAGE );
+            System.exit( 1 );
+        }
+        if ( "--lab".equals( rest[0] ) ) {
+            if ( !runLab( rest, warmedUp ) ) {
+                System.exit( 1 );
+            }
+            return;
+        }
+        if ( "--batch".equals( rest[0] ) ) {
+            if ( !runBatch( rest, warmedUp ) ) {
+                System.exit( 1 );
+            }
+            return;
+        }
+        boolean time = false;
+        if ( "--time".equals( rest[0] ) ) {
+            if ( rest.length < 2 ) {
+                System.err.println( USAGE );
+                System.exit( 1 );
+            }
+            time = true;
+            rest = Arrays.copyOfRange( rest, 1, rest.length );
+        }
+        final Board originalBoard = readFile( rest[0] );
+        if ( originalBoard == null ) {
+            return;
+        }
         final Board finalBoard = solve( originalBoard );
-        printFinalBoard( finalBoard );
+        final long firstSolution = System.currentTimeMillis();
+        if ( finalBoard != null ) {
+            printFinalBoard( finalBoard );
+        }
+        if ( time && !warmedUp ) {
+            printColdStart( firstSolution );
+        }
     }
 
     /**
@@ -31,10 +116,41 @@ public class SimpleSudokuSolver {
      *
      * @param file
      *            the file to convert to a Board
-     * @return a Board
+     * @return a Board, or null if the file does not hold a puzzle
      */
     private static Board readFile ( final String file ) {
-        return new Board( file );
+        int[][] grid = null;
+        try {
+            grid = readFirstPuzzle( file );
+        }
+        catch ( final IOException e ) {
+            System.out.println( "Could not read " + file );
+            return null;
+        }
+        if ( grid == null ) {
+            System.out.println( file + " does not hold a complete puzzle" );
+            return null;
+        }
+        return new Board( grid );
+    }
+
+    /**
+     * Reads the first puzzle in a file
+     *
+     * @param file
+     *            the file to read
+     * @return the grid, or null if the file does not hold a complete puzzle
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static int[][] readFirstPuzzle ( final String file ) throws IOException {
+        final PuzzleReader reader = new PuzzleReader( file, 0 );
+        try {
+            return reader.next();
+        }
+        finally {
+            reader.close();
+        }
     }
 
     /**
@@ -48,21 +164,90 @@ public class SimpleSudokuSolver {
     }
 
     /**
-     * Solves the puzzle
+     * Solves the puzzle using the default search strategies
      *
      * @param board
      *            the board to solve
-     * @return
+     * @return the solved Board, or null if there is no solution
      */
     private static Board solve ( final Board board ) {
+        final Board result = search( board, new MrvSelector(), new NaturalOrder(), new SearchStats() );
+        if ( result != null && checkComplete( result.getBoard() ) && checkValid( result.getBoard() ) ) {
+            return result;
+        }
+        System.out.println( "FAIL" );
+        return null;
+    }
+
+    /**
+     * Searches for a solution. Puzzles whose givens clash have no solution and
+     * are rejected before any guessing starts.
+     *
+     * @param board
+     *            the Board to solve
+     * @param selector
+     *            chooses which empty cell to branch on
+     * @param order
+     *            chooses the order to try values in
+     * @param stats
+     *            collects node and backtrack counts
+     * @return the completed Board, or null if there is no solution
+     */
+    private static Board search ( final Board board, final CellSelector selector, final ValueOrder order,
+            final SearchStats stats ) {
+        for ( int i = 0; i < 9; i++ ) {
+            for ( int j = 0; j < 9; j++ ) {
+                if ( board.getBoard()[i][j] != 0 && conflictsWithPeer( board, i, j ) ) {
+                    return null;
+                }
+            }
+        }
+        return branch( board, selector, order, stats );
+    }
+
+    /**
+     * Makes every move it can without guessing, then guesses on the cell
+     * chosen by the selector, trying values in the order given by the value
+     * ordering and backtracking when a guess leads to a dead end.
+     *
+     * @param board
+     *            the Board to solve
+     * @param selector
+     *            chooses which empty cell to branch on
+     * @param order
+     *            chooses the order to try values in
+     * @param stats
+     *            collects node and backtrack counts
+     * @return the completed Board, or null if there is no solution
+     */
+    private static Board branch ( final Board board, final CellSelector selector, final ValueOrder order,
+            final SearchStats stats ) {
+        stats.addNode();
+        final Action action = board.getAction();
+        if ( action != null && conflictsWithPeer( board, action.getX(), action.getY() ) ) {
+            return null;
+        }
         boolean move = true;
         while ( move ) {
             move = inference( board );
         }
-        if ( checkComplete( board.getBoard() ) && checkValid( board.getBoard() ) ) {
+        if ( checkComplete( board.getBoard() ) ) {
             return board;
         }
-        System.out.println( "FAIL" );
+        if ( !hasCandidates( board ) ) {
+            return null;
+        }
+
+        final int[] cell = selector.select( board );
+        final List<Integer> values = order.order( board, cell[0], cell[1] );
+        for ( int i = 0; i < values.size(); i++ ) {
+            final Action guess = new Action( values.get( i ), cell[0], cell[1], board );
+            final Board result = branch( guess.getResult(), selector, order, stats );
+            if ( result != null ) {
+                return result;
+            }
+            stats.addBacktrack();
+        }
         return null;
     }
 
@@ -226,6 +411,14 @@ public class SimpleSudokuSolver {
      * @return true if valid, false if not
      */
     private static boolean checkValid ( final int[][] board ) {
+        for ( int i = 0; i < 9; i++ ) {
+            for ( int j = 0; j < 9; j++ ) {
+                if ( board[i][j] < 1 || board[i][j] > 9 ) {
+                    return false;
+                }
+            }
+        }
+
         for ( int i = 0; i < 9; i++ ) {
             final Set<Integer> row = new HashSet<Integer>();
             final Set<Integer> column = new HashSet<Integer>();
@@ -347,6 +540,375 @@ public class SimpleSudokuSolver {
         return true;
     }
 
+    /**
+     * Checks that every empty space still has at least one possible value
+     *
+     * @param board
+     *            the Board to check
+     * @return true if no space is a dead end, false if not
+     */
+    private static boolean hasCandidates ( final Board board ) {
+        for ( int i = 0; i < 9; i++ ) {
+            for ( int j = 0; j < 9; j++ ) {
+                if ( board.getBoard()[i][j] == 0 && board.getPossible()[i][j].size() == 0 ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a filled space holds the same value as one of its peers.
+     * Empty spaces are ignored.
+     *
+     * @param board
+     *            the Board
+     * @param x
+     *            horizontal number
+     * @param y
+     *            vertical number
+     * @return true if a peer holds the same value
+     */
+    private static boolean conflictsWithPeer ( final Board board, final int x, final int y ) {
+        final int value = board.getBoard()[x][y];
+        for ( int i = 0; i < 9; i++ ) {
+            for ( int j = 0; j < 9; j++ ) {
+                if ( board.getBoard()[i][j] == value && isPeer( x, y, i, j ) ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if two spaces share a row, column, or quadrant
+     *
+     * @param x
+     *            horizontal number of the first space
+     * @param y
+     *            vertical number of the first space
+     * @param i
+     *            horizontal number of the second space
+     * @param j
+     *            vertical number of the second space
+     * @return true if the spaces are different and share a unit
+     */
+    private static boolean isPeer ( final int x, final int y, final int i, final int j ) {
+        if ( i == x && j == y ) {
+            return false;
+        }
+        return i == x || j == y || ( i / 3 == x / 3 && j / 3 == y / 3 );
+    }
+
+    /**
+     * Counts the empty spaces that share a unit with the given space
+     *
+     * @param board
+     *            the Board
+     * @param x
+     *            horizontal number
+     * @param y
+     *            vertical number
+     * @return number of empty peers
+     */
+    private static int countEmptyPeers ( final Board board, final int x, final int y ) {
+        int count = 0;
+        for ( int i = 0; i < 9; i++ ) {
+            for ( int j = 0; j < 9; j++ ) {
+                if ( board.getBoard()[i][j] == 0 && isPeer( x, y, i, j ) ) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the empty peers of a space that could still take a value
+     *
+     * @param board
+     *            the Board
+     * @param x
+     *            horizontal number
+     * @param y
+     *            vertical number
+     * @param value
+     *            the value to look for
+     * @return number of peers that would lose the value as a possibility
+     */
+    private static int countPeersWithValue ( final Board board, final int x, final int y, final int value ) {
+        int count = 0;
+        for ( int i = 0; i < 9; i++ ) {
+            for ( int j = 0; j < 9; j++ ) {
+                if ( board.getBoard()[i][j] == 0 && isPeer( x, y, i, j )
+                        && board.getPossible()[i][j].contains( value ) ) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sorts values by ascending score. Ties keep their original order.
+     *
+     * @param values
+     *            the values to sort
+     * @param scores
+     *            score for each value, indexed by the value
+     * @return the sorted values
+     */
+    private static List<Integer> sortByScore ( final List<Integer> values, final int[] scores ) {
+        final List<Integer> sorted = new ArrayList<Integer>( values.size() );
+        for ( int i = 0; i < values.size(); i++ ) {
+            final Integer value = values.get( i );
+            int k = sorted.size();
+            while ( k > 0 && scores[sorted.get( k - 1 )] > scores[value] ) {
+                k--;
+            }
+            sorted.add( k, value );
+        }
+        return sorted;
+    }
+
+    /**
+     * Runs every combination of cell selection and value ordering over a
+     * corpus of puzzles and reports the number of search nodes, backtracks,
+     * and time taken by each. Every combination is run once untimed first so
+     * that JIT warm-up does not count against whichever runs first. The first
+     * puzzle is solved before the rest of the corpus is read so the time to
+     * the first solution does not grow with the corpus.
+     *
+     * @param args
+     *            --lab followed by the corpus files
+     * @param warmedUp
+     *            true if --warmup ran, so startup time is not reported
+     * @return false if the arguments were not understood
+     */
+    private static boolean runLab ( final String[] args, final boolean warmedUp ) {
+        if ( args.length < 2 ) {
+            System.err.println( "Usage: --lab <files...>" );
+            return false;
+        }
+        final CellSelector[] selectors = createSelectors();
+        final ValueOrder[] orders = createOrders();
+
+        long firstSolution = 0;
+        try {
+            final int[][] first = readFirstPuzzle( args[1] );
+            if ( first != null ) {
+                search( new Board( first ), selectors[0], orders[0], new SearchStats() );
+                firstSolution = System.currentTimeMillis();
+            }
+        }
+        catch ( final IOException e ) {
+            // reported when the corpus is read below
+        }
+
+        final List<int[][]> corpus = new ArrayList<int[][]>();
+        for ( int i = 1; i < args.length; i++ ) {
+            corpus.addAll( readPuzzles( args[i] ) );
+        }
+        for ( final CellSelector selector : selectors ) {
+            for ( final ValueOrder order : orders ) {
+                solveAll( corpus, selector, order, new SearchStats() );
+            }
+        }
+
+        System.out.println( corpus.size() + " puzzles" );
+        System.out.println( String.format( "%-12s %-20s %8s %12s %12s %10s", "cell", "value", "solved", "nodes",
+                "backtracks", "ms" ) );
+        for ( final CellSelector selector : selectors ) {
+            for ( final ValueOrder order : orders ) {
+                final SearchStats stats = new SearchStats();
+                final long start = System.nanoTime();
+                final int solved = solveAll( corpus, selector, order, stats );
+                final long elapsed = System.nanoTime() - start;
+                System.out.println( String.format( "%-12s %-20s %8d %12d %12d %10.3f", selector.getName(),
+                        order.getName(), solved, stats.getNodes(), stats.getBacktracks(), elapsed / 1e6 ) );
+            }
+        }
+        if ( !warmedUp ) {
+            printColdStart( firstSolution );
+        }
+        return true;
+    }
+
+    /**
+     * Creates every cell selection strategy, the default first
+     *
+     * @return the strategies
+     */
+    private static CellSelector[] createSelectors () {
+        return new CellSelector[] { new MrvSelector(), new MrvDegreeSelector(), new UnitSelector() };
+    }
+
+    /**
+     * Creates every value ordering strategy, the default first
+     *
+     * @return the strategies
+     */
+    private static ValueOrder[] createOrders () {
+        return new ValueOrder[] { new NaturalOrder(), new LeastConstrainingOrder(), new FrequencyOrder() };
+    }
+
+    /**
+     * Solves every puzzle in a corpus with one combination of strategies
+     *
+     * @param corpus
+     *            the grids to solve
+     * @param selector
+     *            chooses which empty cell to branch on
+     * @param order
+     *            chooses the order to try values in
+     * @param stats
+     *            collects node and backtrack counts
+     * @return number of puzzles solved
+     */
+    private static int solveAll ( final List<int[][]> corpus, final CellSelector selector, final ValueOrder order,
+            final SearchStats stats ) {
+        int solved = 0;
+        for ( final int[][] grid : corpus ) {
+            final Board result = search( new Board( grid ), selector, order, stats );
+            if ( result != null && checkValid( result.getBoard() ) ) {
+                solved++;
+            }
+        }
+        return solved;
+    }
+
+    /**
+     * Solves the built-in warm-up puzzles with every strategy so the JIT has
+     * compiled the solver before anything is timed
+     *
+     * @param rounds
+     *            number of times to solve each puzzle
+     */
+    private static void warmup ( final int rounds ) {
+        final CellSelector[] selectors = createSelectors();
+        final ValueOrder[] orders = createOrders();
+        final int[][][] grids = new int[WARMUP_PUZZLES.length][][];
+        for ( int p = 0; p < WARMUP_PUZZLES.length; p++ ) {
+            grids[p] = new int[9][9];
+            for ( int k = 0; k < 81; k++ ) {
+                final char c = WARMUP_PUZZLES[p].charAt( k );
+                grids[p][k / 9][k % 9] = c == '.' ? 0 : c - '0';
+            }
+        }
+        for ( int round = 0; round < rounds; round++ ) {
+            for ( final CellSelector selector : selectors ) {
+                for ( final ValueOrder order : orders ) {
+                    for ( final int[][] grid : grids ) {
+                        search( new Board( grid ), selector, order, new SearchStats() );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints the time from JVM start to the first solution. The start time is
+     * only looked up here, after the fact, so loading the management classes
+     * does not count against startup.
+     *
+     * @param firstSolution
+     *            wall clock time of the first solution, or 0 if there was none
+     */
+    private static void printColdStart ( final long firstSolution ) {
+        if ( firstSolution != 0 ) {
+            final long start = ManagementFactory.getRuntimeMXBean().getStartTime();
+            System.out.println( "cold start to first solution: " + ( firstSolution - start ) + " ms" );
+        }
+    }
+
+    /**
+     * Reads every puzzle in a file. Each puzzle is 81 values in the same
+     * format as a single Board file, and puzzles follow one another.
+     *
+     * @param file
+     *            the file to read
+     * @return the grids read, in order
+     */
+    private static List<int[][]> readPuzzles ( final String file ) {
+        final List<int[][]> puzzles = new ArrayList<int[][]>();
+        try {
+            final PuzzleReader reader = new PuzzleReader( file, 0 );
+            int[][] grid = reader.next();
+            while ( grid != null ) {
+                puzzles.add( grid );
+                grid = reader.next();
+            }
+            reader.close();
+        }
+        catch ( final IOException e ) {
+            System.out.println( "Could not read " + file );
+        }
+        return puzzles;
+    }
+
+    /**
+     * Solves every puzzle in the input file and writes one line per puzzle to
+     * the output file: the 81 values of the solution, or FAIL. Progress is
+     * saved to a checkpoint file every few seconds so a run that dies can be
+     * started again with the same arguments and pick up where it stopped.
+     *
+     * @param args
+     *            --batch, input file, output file, and optional checkpoint
+     *            file (defaults to the output file with .ckpt added)
+     * @param warmedUp
+     *            true if --warmup ran, so startup time is not reported
+     * @return false if the arguments were not understood or the run failed
+     */
+    private static boolean runBatch ( final String[] args, final boolean warmedUp ) {
+        if ( args.length < 3 ) {
+            System.err.println( "Usage: --batch <input> <output> [checkpoint]" );
+            return false;
+        }
+        final String checkpointFile = args.length > 3 ? args[3] : args[2] + ".ckpt";
+        try {
+            final Checkpoint checkpoint = Checkpoint.read( checkpointFile );
+            final BatchRun run = new BatchRun( args[1], args[2], checkpointFile, checkpoint );
+            run.run();
+            final Checkpoint done = run.getCheckpoint();
+            System.out.println( done.getPuzzles() + " puzzles, " + done.getSolved() + " solved, "
+                    + done.getFailed() + " failed" );
+            System.out.println( String.format( "%d this run in %.3f ms, checkpoint overhead %.3f ms (%.3f%%)",
+                    run.getPuzzlesThisRun(), run.getElapsed() / 1e6, run.getCheckpointTime() / 1e6,
+                    run.getElapsed() == 0 ? 0.0 : 100.0 * run.getCheckpointTime() / run.getElapsed() ) );
+            if ( !warmedUp ) {
+                printColdStart( run.getFirstSolution() );
+            }
+        }
+        catch ( final IOException e ) {
+            System.err.println( "Batch failed: " + e.getMessage() );
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Converts a token from an input file to a value. Anything that is not a
+     * number from 1 to 9 is an empty space.
+     *
+     * @param next
+     *            the token
+     * @return the value, or 0 for an empty space
+     */
+    private static int parseValue ( final String next ) {
+        try {
+            final int value = Integer.parseInt( next );
+            if ( value < 1 || value > 9 ) {
+                return 0;
+            }
+            return value;
+        }
+        catch ( final NumberFormatException e ) {
+            return 0;
+        }
+    }
+
     /**
      * Checks of the puzzle is complete (not valid/correct)
      *
@@ -378,29 +940,16 @@ public class SimpleSudokuSolver {
                                         // was taken
 
         /**
-         * Creates a Board from an input file
+         * Creates a Board from a grid of values
          *
-         * @param file
-         *            input file
+         * @param grid
+         *            9x9 values, with 0 for an empty space
          */
-        public Board ( final String file ) {
-            Scanner fileScanner = null;
-            try {
-                fileScanner = new Scanner( new File( file ) );
-            }
-            catch ( final FileNotFoundException e ) {
-
-            }
+        public Board ( final int[][] grid ) {
             this.board = new int[9][9];
             for ( int i = 0; i < 9; i++ ) {
                 for ( int j = 0; j < 9; j++ ) {
-                    try {
-                        final String next = fileScanner.next();
-                        board[i][j] = Integer.parseInt( next );
-                    }
-                    catch ( final NumberFormatException e ) {
-                        board[i][j] = 0;
-                    }
+                    board[i][j] = grid[i][j];
                 }
             }
             this.possible = new Possible[9][9];
@@ -411,14 +960,28 @@ public class SimpleSudokuSolver {
         }
 
         /**
-         * Creates a Board from an Action
+         * Creates a Board from an Action. Copies the Board the Action was made
+         * on and places the Action's number.
          *
          * @param action
          *            the Action made to create a Board
          */
         public Board ( final Action action ) {
-            this.board = null;
+            final Board previous = action.getBoard();
+            this.board = new int[9][9];
+            this.possible = new Possible[9][9];
+            for ( int i = 0; i < 9; i++ ) {
+                for ( int j = 0; j < 9; j++ ) {
+                    board[i][j] = previous.getBoard()[i][j];
+                    possible[i][j] = new Possible( previous.getPossible()[i][j] );
+                }
+            }
             this.action = action;
+            this.parent = previous;
+
+            possible[action.getX()][action.getY()] = new Possible();
+            possible[action.getX()][action.getY()].add( action.getAction() );
+            makeMove( this, action.getX(), action.getY() );
         }
 
         public int[][] getBoard () {
@@ -579,32 +1142,39 @@ public class SimpleSudokuSolver {
             }
         }
 
+        public Action getAction () {
+            return action;
+        }
+
         public Board getParent () {
             return parent;
         }
 
         /**
-         * Prints the Board
+         * Prints the Board. Builds the whole Board first and prints it once,
+         * without string concatenation, which would bootstrap invokedynamic
+         * at startup.
          */
         public void printBoard () {
+            final StringBuilder out = new StringBuilder( 256 );
             for ( int i = 0; i < 9; i++ ) {
                 for ( int j = 0; j < 9; j++ ) {
-                    System.out.print( board[i][j] + " " );
+                    out.append( (char) ( '0' + board[i][j] ) ).append( ' ' );
                     if ( j == 2 || j == 5 ) {
-                        System.out.print( "| " );
+                        out.append( "| " );
                     }
                 }
-                System.out.println();
+                out.append( System.lineSeparator() );
                 if ( i == 2 || i == 5 ) {
-                    System.out.println( "---------------------" );
+                    out.append( "---------------------" ).append( System.lineSeparator() );
                 }
             }
+            System.out.print( out );
         }
     }
 
     /**
-     * Represents an move on the Board. (Not yet implemented. This will be for
-     * when I implement solving puzzles that require guessing.)
+     * Represents a guess on the Board.
      *
      * @author jtnguye3
      */
@@ -666,6 +1236,16 @@ public class SimpleSudokuSolver {
             possible = new LinkedList<Integer>();
         }
 
+        /**
+         * Creates a copy of another Possible
+         *
+         * @param other
+         *            the Possible to copy
+         */
+        public Possible ( final Possible other ) {
+            possible = new LinkedList<Integer>( other.possible );
+        }
+
         /**
          * Returns the number of possible values
          *
@@ -705,5 +1285,612 @@ public class SimpleSudokuSolver {
         public Integer get ( final int index ) {
             return possible.get( index );
         }
+
+        /**
+         * Checks if a value is possible
+         *
+         * @param num
+         *            value to look for
+         * @return true if possible, false if not
+         */
+        public boolean contains ( final Integer num ) {
+            return possible.contains( num );
+        }
+
+        /**
+         * Returns a copy of the possible values
+         *
+         * @return list of values
+         */
+        public List<Integer> getValues () {
+            return new ArrayList<Integer>( possible );
+        }
+    }
+
+    /**
+     * Reads puzzles one at a time from a file, keeping track of how far into
+     * the file it has read so a later run can start from the same place.
+     */
+    private static class PuzzleReader {
+        private final InputStream in;     // buffered file contents
+        private long              offset; // bytes read so far
+        private long              end;    // offset just after the last puzzle
+
+        /**
+         * Opens a file for reading
+         *
+         * @param file
+         *            the file to read
+         * @param start
+         *            byte offset to start reading at
+         * @throws IOException
+         *             if the file cannot be opened
+         */
+        public PuzzleReader ( final String file, final long start ) throws IOException {
+            final FileInputStream stream = new FileInputStream( file );
+            if ( start > 0 ) {
+                stream.getChannel().position( start );
+            }
+            this.in = new BufferedInputStream( stream, 1 << 16 );
+            this.offset = start;
+            this.end = start;
+        }
+
+        /**
+         * Reads the next puzzle
+         *
+         * @return the grid, or null if there are no complete puzzles left
+         * @throws IOException
+         *             if the file cannot be read
+         */
+        public int[][] next () throws IOException {
+            final int[][] grid = new int[9][9];
+            final StringBuilder token = new StringBuilder();
+            for ( int count = 0; count < 81; count++ ) {
+                token.setLength( 0 );
+                int c = in.read();
+                offset++;
+                while ( c != -1 && Character.isWhitespace( c ) ) {
+                    c = in.read();
+                    offset++;
+                }
+                while ( c != -1 && !Character.isWhitespace( c ) ) {
+                    token.append( (char) c );
+                    c = in.read();
+                    offset++;
+                }
+                if ( c == -1 ) {
+                    offset--;
+                    if ( token.length() == 0 ) {
+                        return null;
+                    }
+                }
+                grid[count / 9][count % 9] = parseValue( token.toString() );
+            }
+            end = offset;
+            return grid;
+        }
+
+        /**
+         * Returns the byte offset just after the last puzzle read
+         *
+         * @return offset
+         */
+        public long getEnd () {
+            return end;
+        }
+
+        public void close () throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * How far a batch run has got: where to continue reading and writing, and
+     * the totals so far. Stored as a small binary file that is replaced
+     * atomically, so it always describes output that is already on disk. The
+     * length and modification time of the input are kept too, so a run is not
+     * resumed against a different input.
+     */
+    private static class Checkpoint {
+        private static final int MAGIC = 0x53554b32; // "SUK2"
+
+        private final long       inputLength;   // -1 if nothing checkpointed yet
+        private final long       inputModified;
+        private final long       inputOffset;
+        private final long       outputOffset;
+        private final long       puzzles;
+        private final long       solved;
+        private final long       failed;
+
+        public Checkpoint ( final long inputLength, final long inputModified, final long inputOffset,
+                final long outputOffset, final long puzzles, final long solved, final long failed ) {
+            this.inputLength = inputLength;
+            this.inputModified = inputModified;
+            this.inputOffset = inputOffset;
+            this.outputOffset = outputOffset;
+            this.puzzles = puzzles;
+            this.solved = solved;
+            this.failed = failed;
+        }
+
+        /**
+         * Reads a checkpoint file
+         *
+         * @param file
+         *            the checkpoint file
+         * @return the Checkpoint, or an empty one if the file does not exist
+         * @throws IOException
+         *             if the file cannot be read or is not a checkpoint
+         */
+        public static Checkpoint read ( final String file ) throws IOException {
+            if ( !new File( file ).exists() ) {
+                return new Checkpoint( -1, 0, 0, 0, 0, 0, 0 );
+            }
+            final DataInputStream in = new DataInputStream( new FileInputStream( file ) );
+            try {
+                if ( in.readInt() != MAGIC ) {
+                    throw new IOException( file + " is not a valid checkpoint file" );
+                }
+                return new Checkpoint( in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                        in.readLong(), in.readLong() );
+            }
+            catch ( final EOFException e ) {
+                throw new IOException( file + " is not a valid checkpoint file" );
+            }
+            finally {
+                in.close();
+            }
+        }
+
+        /**
+         * Writes the checkpoint to a temporary file, syncs it, and moves it
+         * over the old checkpoint
+         *
+         * @param file
+         *            the checkpoint file
+         * @throws IOException
+         *             if the file cannot be written
+         */
+        public void write ( final String file ) throws IOException {
+            final File temp = new File( file + ".tmp" );
+            final FileOutputStream stream = new FileOutputStream( temp );
+            final DataOutputStream out = new DataOutputStream( stream );
+            try {
+                out.writeInt( MAGIC );
+                out.writeLong( inputLength );
+                out.writeLong( inputModified );
+                out.writeLong( inputOffset );
+                out.writeLong( outputOffset );
+                out.writeLong( puzzles );
+                out.writeLong( solved );
+                out.writeLong( failed );
+                out.flush();
+                stream.getFD().sync();
+            }
+            finally {
+                out.close();
+            }
+            Files.move( temp.toPath(), new File( file ).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+        }
+
+        /**
+         * Checks that an input file is the one this checkpoint was taken
+         * against
+         *
+         * @param input
+         *            the input file
+         * @return true if nothing was checkpointed yet, or the file has the
+         *         same length and modification time
+         */
+        public boolean matches ( final File input ) {
+            return inputLength == -1 || ( input.length() == inputLength && input.lastModified() == inputModified );
+        }
+
+        public long getInputOffset () {
+            return inputOffset;
+        }
+
+        public long getOutputOffset () {
+            return outputOffset;
+        }
+
+        public long getPuzzles () {
+            return puzzles;
+        }
+
+        public long getSolved () {
+            return solved;
+        }
+
+        public long getFailed () {
+            return failed;
+        }
+    }
+
+    /**
+     * A batch run resumed from a Checkpoint
+     */
+    private static class BatchRun {
+        private static final long INTERVAL = 5000000000L; // nanoseconds between
+                                                          // checkpoints
+
+        private final String      input;
+        private final String      output;
+        private final String      checkpointFile;
+        private Checkpoint        checkpoint;
+        private long              inputLength;
+        private long              inputModified;
+        private long              puzzlesThisRun;
+        private long              firstSolution;
+        private long              elapsed;
+        private long              checkpointTime;
+
+        public BatchRun ( final String input, final String output, final String checkpointFile,
+                final Checkpoint checkpoint ) {
+            this.input = input;
+            this.output = output;
+            this.checkpointFile = checkpointFile;
+            this.checkpoint = checkpoint;
+        }
+
+        /**
+         * Solves the rest of the input. Anything written to the output after
+         * the checkpoint is thrown away first, since those puzzles will be
+         * solved again.
+         *
+         * @throws IOException
+         *             if a file cannot be read or written
+         */
+        public void run () throws IOException {
+            final long start = System.nanoTime();
+            final File inputFile = new File( input );
+            if ( !checkpoint.matches( inputFile ) ) {
+                throw new IOException( input + " has changed since its checkpoint" );
+            }
+            inputLength = inputFile.length();
+            inputModified = inputFile.lastModified();
+            final PuzzleReader reader = new PuzzleReader( input, checkpoint.getInputOffset() );
+            RandomAccessFile file = null;
+            BufferedOutputStream out = null;
+
+            long outputOffset = checkpoint.getOutputOffset();
+            long puzzles = checkpoint.getPuzzles();
+            long solved = checkpoint.getSolved();
+            long failed = checkpoint.getFailed();
+            final byte[] line = new byte[82];
+            long lastCheckpoint = System.nanoTime();
+            try {
+                file = new RandomAccessFile( output, "rw" );
+                if ( file.length() < outputOffset ) {
+                    throw new IOException( output + " is shorter than its checkpoint" );
+                }
+                file.setLength( outputOffset );
+                file.seek( outputOffset );
+                out = new BufferedOutputStream( new FileOutputStream( file.getFD() ), 1 << 16 );
+
+                int[][] grid = reader.next();
+                while ( grid != null ) {
+                    final Board result = search( new Board( grid ), new MrvSelector(), new NaturalOrder(),
+                            new SearchStats() );
+                    if ( result != null && checkValid( result.getBoard() ) ) {
+                        for ( int i = 0; i < 81; i++ ) {
+                            line[i] = (byte) ( '0' + result.getBoard()[i / 9][i % 9] );
+                        }
+                        line[81] = '\n';
+                        out.write( line );
+                        outputOffset += line.length;
+                        solved++;
+                        if ( firstSolution == 0 ) {
+                            firstSolution = System.currentTimeMillis();
+                        }
+                    }
+                    else {
+                        out.write( FAIL );
+                        outputOffset += FAIL.length;
+                        failed++;
+                    }
+                    puzzles++;
+                    puzzlesThisRun++;
+
+                    final long now = System.nanoTime();
+                    if ( now - lastCheckpoint >= INTERVAL ) {
+                        save( out, file, reader.getEnd(), outputOffset, puzzles, solved, failed );
+                        lastCheckpoint = System.nanoTime();
+                    }
+                    grid = reader.next();
+                }
+                save( out, file, reader.getEnd(), outputOffset, puzzles, solved, failed );
+            }
+            finally {
+                reader.close();
+                if ( out != null ) {
+                    out.close();
+                }
+                if ( file != null ) {
+                    file.close();
+                }
+            }
+            elapsed = System.nanoTime() - start;
+        }
+
+        /**
+         * Makes the output written so far durable, then records it in the
+         * checkpoint
+         */
+        private void save ( final BufferedOutputStream out, final RandomAccessFile file, final long inputOffset,
+                final long outputOffset, final long puzzles, final long solved, final long failed )
+                throws IOException {
+            final long start = System.nanoTime();
+            out.flush();
+            file.getFD().sync();
+            checkpoint = new Checkpoint( inputLength, inputModified, inputOffset, outputOffset, puzzles, solved,
+                    failed );
+            checkpoint.write( checkpointFile );
+            checkpointTime += System.nanoTime() - start;
+        }
+
+        public Checkpoint getCheckpoint () {
+            return checkpoint;
+        }
+
+        public long getPuzzlesThisRun () {
+            return puzzlesThisRun;
+        }
+
+        public long getFirstSolution () {
+            return firstSolution;
+        }
+
+        public long getElapsed () {
+            return elapsed;
+        }
+
+        public long getCheckpointTime () {
+            return checkpointTime;
+        }
+    }
+
+    /**
+     * Counts the work done by a search
+     */
+    private static class SearchStats {
+        private long nodes;      // Boards visited
+        private long backtracks; // guesses that led to a dead end
+
+        public void addNode () {
+            nodes++;
+        }
+
+        public void addBacktrack () {
+            backtracks++;
+        }
+
+        public long getNodes () {
+            return nodes;
+        }
+
+        public long getBacktracks () {
+            return backtracks;
+        }
+    }
+
+    /**
+     * Chooses which empty space to guess on
+     */
+    private interface CellSelector {
+        /**
+         * Picks an empty space. The Board must have at least one.
+         *
+         * @param board
+         *            the Board
+         * @return horizontal and vertical number of the space
+         */
+        int[] select ( Board board );
+
+        String getName ();
+    }
+
+    /**
+     * Chooses the order to guess values in
+     */
+    private interface ValueOrder {
+        /**
+         * Orders the possible values of a space
+         *
+         * @param board
+         *            the Board
+         * @param x
+         *            horizontal number
+         * @param y
+         *            vertical number
+         * @return the values to try, in order
+         */
+        List<Integer> order ( Board board, int x, int y );
+
+        String getName ();
+    }
+
+    /**
+     * Picks the space with the fewest possible values
+     */
+    private static class MrvSelector implements CellSelector {
+        @Override
+        public int[] select ( final Board board ) {
+            int[] best = null;
+            int bestSize = 10;
+            for ( int i = 0; i < 9; i++ ) {
+                for ( int j = 0; j < 9; j++ ) {
+                    final int size = board.getPossible()[i][j].size();
+                    if ( board.getBoard()[i][j] == 0 && size < bestSize ) {
+                        best = new int[] { i, j };
+                        bestSize = size;
+                    }
+                }
+            }
+            return best;
+        }
+
+        @Override
+        public String getName () {
+            return "mrv";
+        }
+    }
+
+    /**
+     * Picks the space with the fewest possible values, breaking ties by the
+     * most empty peers
+     */
+    private static class MrvDegreeSelector implements CellSelector {
+        @Override
+        public int[] select ( final Board board ) {
+            int[] best = null;
+            int bestSize = 10;
+            int bestDegree = -1;
+            for ( int i = 0; i < 9; i++ ) {
+                for ( int j = 0; j < 9; j++ ) {
+                    if ( board.getBoard()[i][j] != 0 ) {
+                        continue;
+                    }
+                    final int size = board.getPossible()[i][j].size();
+                    if ( size > bestSize ) {
+                        continue;
+                    }
+                    final int degree = countEmptyPeers( board, i, j );
+                    if ( size < bestSize || degree > bestDegree ) {
+                        best = new int[] { i, j };
+                        bestSize = size;
+                        bestDegree = degree;
+                    }
+                }
+            }
+            return best;
+        }
+
+        @Override
+        public String getName () {
+            return "mrv-degree";
+        }
+    }
+
+    /**
+     * Picks the row, column, or quadrant with the fewest empty spaces, then
+     * the space in it with the fewest possible values
+     */
+    private static class UnitSelector implements CellSelector {
+        @Override
+        public int[] select ( final Board board ) {
+            int bestUnit = -1;
+            int bestEmpty = 10;
+            // units 0-8 are rows, 9-17 are columns, 18-26 are quadrants
+            for ( int unit = 0; unit < 27; unit++ ) {
+                int empty = 0;
+                for ( int k = 0; k < 9; k++ ) {
+                    if ( board.getBoard()[unitX( unit, k )][unitY( unit, k )] == 0 ) {
+                        empty++;
+                    }
+                }
+                if ( empty > 0 && empty < bestEmpty ) {
+                    bestUnit = unit;
+                    bestEmpty = empty;
+                }
+            }
+
+            int[] best = null;
+            int bestSize = 10;
+            for ( int k = 0; k < 9; k++ ) {
+                final int x = unitX( bestUnit, k );
+                final int y = unitY( bestUnit, k );
+                final int size = board.getPossible()[x][y].size();
+                if ( board.getBoard()[x][y] == 0 && size < bestSize ) {
+                    best = new int[] { x, y };
+                    bestSize = size;
+                }
+            }
+            return best;
+        }
+
+        private static int unitX ( final int unit, final int k ) {
+            if ( unit < 9 ) {
+                return unit;
+            }
+            if ( unit < 18 ) {
+                return k;
+            }
+            return ( unit - 18 ) / 3 * 3 + k / 3;
+        }
+
+        private static int unitY ( final int unit, final int k ) {
+            if ( unit < 9 ) {
+                return k;
+            }
+            if ( unit < 18 ) {
+                return unit - 9;
+            }
+            return ( unit - 18 ) % 3 * 3 + k % 3;
+        }
+
+        @Override
+        public String getName () {
+            return "unit";
+        }
+    }
+
+    /**
+     * Tries values in the order they are stored
+     */
+    private static class NaturalOrder implements ValueOrder {
+        @Override
+        public List<Integer> order ( final Board board, final int x, final int y ) {
+            return board.getPossible()[x][y].getValues();
+        }
+
+        @Override
+        public String getName () {
+            return "natural";
+        }
+    }
+
+    /**
+     * Tries the values that rule out the fewest possibilities for peers first
+     */
+    private static class LeastConstrainingOrder implements ValueOrder {
+        @Override
+        public List<Integer> order ( final Board board, final int x, final int y ) {
+            final List<Integer> values = board.getPossible()[x][y].getValues();
+            final int[] scores = new int[10];
+            for ( int i = 0; i < values.size(); i++ ) {
+                scores[values.get( i )] = countPeersWithValue( board, x, y, values.get( i ) );
+            }
+            return sortByScore( values, scores );
+        }
+
+        @Override
+        public String getName () {
+            return "least-constraining";
+        }
+    }
+
+    /**
+     * Tries the values already placed most often on the Board first, since
+     * they have the fewest spaces left to go
+     */
+    private static class FrequencyOrder implements ValueOrder {
+        @Override
+        public List<Integer> order ( final Board board, final int x, final int y ) {
+            final int[] scores = new int[10];
+            for ( int i = 0; i < 9; i++ ) {
+                for ( int j = 0; j < 9; j++ ) {
+                    scores[board.getBoard()[i][j]]--;
+                }
+            }
+            return sortByScore( board.getPossible()[x][y].getValues(), scores );
+        }
+
+        @Override
+        public String getName () {
+            return "frequency";
+        }
     }
 }
@@ -0,0 +1,52 @@
+#!/bin/bash
+# Builds the solver, creates a class data sharing archive from a training run
+# on a sample puzzle, and compares process times with and without it.
+#
+# Usage: ./startup.sh [runs]
+set -e
+cd "$(dirname "$0")"
+RUNS=${1:-10}
+BUILD=build
+JAR=$BUILD/SimpleSudokuSolver.jar
+SAMPLE=puzzles/sample.txt
+
+# Class data sharing only works with classes loaded from a jar
+rm -rf "$BUILD"
+mkdir -p "$BUILD/classes"
+javac -d "$BUILD/classes" src/SimpleSudokuSolver.java
+jar --create --file "$JAR" -C "$BUILD/classes" .
+
+# Training run: solves a sample puzzle through the same single-puzzle path that
+# is timed below, and dumps the classes it loaded into an archive when the JVM
+# exits.
+rm -f "$BUILD/app.jsa"
+java -XX:ArchiveClassesAtExit="$BUILD/app.jsa" -cp "$JAR" SimpleSudokuSolver "$SAMPLE" > /dev/null
+
+# Prints two averages in ms for solving the first sample puzzle: the time from
+# JVM start to the solution as reported by --time, and the total process time
+# from launch through printing and JVM exit. They come from separate runs,
+# since --time loads extra classes after the solution to look up the JVM start
+# time. Uses the bash time keyword rather than date, since only GNU date has
+# nanoseconds.
+time_runs () {
+    TIMEFORMAT=%3R
+    total=0
+    solution=0
+    i=0
+    while [ $i -lt "$RUNS" ]; do
+        java "$@" -cp "$JAR" SimpleSudokuSolver --time "$SAMPLE" > "$BUILD/time.txt"
+        solution=$(awk -v t="$solution" '/first solution/ { print t + $(NF - 1) }' "$BUILD/time.txt")
+        { time java "$@" -cp "$JAR" SimpleSudokuSolver "$SAMPLE" > /dev/null ; } 2> "$BUILD/real.txt"
+        total=$(awk -v t="$total" '{ print t + $1 }' "$BUILD/real.txt")
+        i=$((i + 1))
+    done
+    awk -v s="$solution" -v t="$total" -v n="$RUNS" \
+        'BEGIN { printf "%6.0f ms to first solution, %6.0f ms total process time", s / n, t * 1000 / n }'
+}
+
+echo "average of $RUNS runs:"
+echo "  default:             $(time_runs)"
+echo "  with archive:        $(time_runs -XX:SharedArchiveFile="$BUILD/app.jsa")"
+echo "  with archive, C1:    $(time_runs -XX:SharedArchiveFile="$BUILD/app.jsa" -XX:TieredStopAtLevel=1)"
+echo
+echo "run the solver with: java -XX:SharedArchiveFile=$BUILD/app.jsa -cp $JAR SimpleSudokuSolver <file>"